@@ -1,6 +1,7 @@
 import java.util.Scanner;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Date;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.io.IOException;
@@ -180,12 +181,18 @@ class MovieDVD extends Media {
 class MediaManager {
     // Stores a list of Media objects in the ArrayList created in the main () method
     private List<String[]> mediaLibrary;
+    // Waitlists and holds for media that is already rented
+    private ReservationManager reservations;
+    // Every rent and return, for answering questions about past rentals
+    private RentalHistory history;
 
 
     // Constructor for MediaManager objects
     public MediaManager() {
         // Create an ArrayList to store Media objects
         mediaLibrary = new ArrayList<>();
+        reservations = new ReservationManager();
+        history = new RentalHistory();
     }    
 
     // Stores the number of Media objects in the ArrayList
@@ -316,6 +323,7 @@ class MediaManager {
     
         if (mediaFound) {
             mediaLibrary.remove(indexToRemove);
+            reservations.clear(mediaId);
             System.out.println("\nMedia removed successfully.");
         } else {
             System.out.println("\nMedia not found.");
@@ -334,16 +342,75 @@ class MediaManager {
             mediaId = scanner.next();
         }
     
-        // Find Media object in ArrayList and change the rental status
+        // Get Customer ID
+        System.out.print("Enter Customer ID: ");
+        String customerId = scanner.next();
+    
+        // Find Media object in ArrayList and rent it, or put the customer on its waitlist
         boolean mediaFound = false;
         for (String[] mediaInfo : mediaLibrary) {
             if (mediaInfo[0].equals(mediaId)) {
                 mediaFound = true;
-                if (mediaInfo[1].equals("0")) { // If the media is not rented
-                    mediaInfo[1] = "1"; // Change the status to rented
-                    System.out.println("Media rental status changed to 'Rented'.");
+                ReservationManager.RentOutcome outcome = reservations.rent(mediaInfo, customerId);
+                switch (outcome.getResult()) {
+                    case RENTED:
+                        history.record(mediaId, RentalEvent.Type.RENT);
+                        System.out.println("Media rental status changed to 'Rented'.");
+                        break;
+                    case CLAIMED:
+                        history.record(mediaId, RentalEvent.Type.RENT);
+                        System.out.println("Hold claimed. Media rental status changed to 'Rented'.");
+                        break;
+                    case WAITLISTED:
+                        System.out.println("This media is already rented. Customer added to the waitlist at position "
+                                + outcome.getPosition() + ".");
+                        break;
+                    case ALREADY_WAITLISTED:
+                        System.out.println("This media is already rented. Customer is already on the waitlist at position "
+                                + outcome.getPosition() + ".");
+                        break;
+                    case ALREADY_RENTED:
+                        System.out.println("This customer already has this media.");
+                        break;
+                }
+                break;
+            }
+        }
+    
+        if (!mediaFound) {
+            System.out.println("Media not found.");
+        }
+    }
+
+    public void returnMedia() {
+        Scanner scanner = new Scanner(System.in);
+    
+        // Get Media ID
+        System.out.print("Enter Media ID (5 digits): ");
+        String mediaId = scanner.next();
+        while (!mediaId.matches("\\d{5}")) {
+            System.out.println("Invalid input. Please enter exactly 5 digits.");
+            System.out.print("Enter Media ID (5 digits): ");
+            mediaId = scanner.next();
+        }
+    
+        // Find Media object in ArrayList and hand it to the next customer on the waitlist
+        boolean mediaFound = false;
+        for (String[] mediaInfo : mediaLibrary) {
+            if (mediaInfo[0].equals(mediaId)) {
+                mediaFound = true;
+                ReservationManager.ReturnOutcome outcome = reservations.returnMedia(mediaInfo);
+                if (outcome.getResult() == ReservationManager.ReturnResult.NOT_RENTED) {
+                    System.out.println("This media is not rented.");
+                    break;
+                }
+                history.record(mediaId, RentalEvent.Type.RETURN);
+                Reservation hold = outcome.getHold();
+                if (outcome.getResult() == ReservationManager.ReturnResult.AVAILABLE) {
+                    System.out.println("Media rental status changed to 'Available'.");
                 } else {
-                    System.out.println("This media is already rented.");
+                    System.out.println("Media returned and held for customer " + hold.getCustomerId()
+                            + " until " + new Date(hold.getHoldExpiresAt()) + ".");
                 }
                 break;
             }
@@ -354,6 +421,48 @@ class MediaManager {
         }
     }
 
+    public void displayRentalHistory() {
+        Scanner scanner = new Scanner(System.in);
+    
+        // Get Media ID
+        System.out.print("Enter Media ID (5 digits): ");
+        String mediaId = scanner.next();
+        while (!mediaId.matches("\\d{5}")) {
+            System.out.println("Invalid input. Please enter exactly 5 digits.");
+            System.out.print("Enter Media ID (5 digits): ");
+            mediaId = scanner.next();
+        }
+    
+        // Get number of days
+        System.out.print("Enter number of days of history: ");
+        int days = scanner.nextInt();
+        while (days <= 0) {
+            System.out.println("Invalid input. Please enter a positive number of days.");
+            System.out.print("Enter number of days of history: ");
+            days = scanner.nextInt();
+        }
+    
+        long to = System.currentTimeMillis() + 1;
+        long from = to - days * 24L * 60 * 60 * 1000;
+        System.out.println("\nTime                            Event");
+        System.out.println("--------------------------------------");
+        RentalHistory.RentalCount rentals = history.countRentals(mediaId, from, to, event ->
+                System.out.printf("%-31s %s%n", new Date(event.getTimestamp()), event.getType()));
+        if (rentals.isExact()) {
+            System.out.println("Rented " + rentals.getRentals() + " time(s) in the last " + days + " day(s).");
+        } else {
+            // History older than 90 days is only kept as monthly totals, and this range cuts through a month
+            System.out.println("Rented at least " + rentals.getRentals() + " time(s) in the last " + days
+                    + " day(s). History older than 90 days is kept by calendar month, and months the range"
+                    + " only partly covers are not counted.");
+        }
+    }
+
+    // Saves any rental history still waiting to be written and stops its background writer
+    public void close() {
+        history.close();
+    }
+
     public void modifyMedia() {
         Scanner scanner = new Scanner(System.in);
     
@@ -479,6 +588,9 @@ class MediaManager {
             mediaId = scanner.next();
         }
     
+        // Release lapsed holds so the rent status shown is current
+        reservations.expireHolds(mediaLibrary);
+
         // Find Media object in ArrayList
         boolean mediaFound = false;
         System.out.println("\nID      Rent    Type    Title                           Pub     Scope     Calc");
@@ -508,6 +620,9 @@ class MediaManager {
             mediaId = scanner.next();
         }
 
+        // Release lapsed holds so the rent status shown is current
+        reservations.expireHolds(mediaLibrary);
+
         // Find Media object in ArrayList
         boolean mediaFound = false;
         System.out.println("\nID      Rent    Type    Title                           Pub     Scope     Calc");
@@ -526,6 +641,8 @@ class MediaManager {
     }
     
     public void displayAllMedia() {
+        // Release lapsed holds so the rent status shown is current
+        reservations.expireHolds(mediaLibrary);
         System.out.println("\nID      Rent    Type    Title                           Pub     Scope     Calc");
         System.out.println("--------------------------------------------------------------------------------");
         for (String[] mediaInfo : mediaLibrary) {
@@ -545,6 +662,8 @@ class MediaManager {
             mediaType = scanner.next().toUpperCase().charAt(0);
         }
     
+        // Release lapsed holds so the rent status shown is current
+        reservations.expireHolds(mediaLibrary);
         System.out.println("\nID      Rent    Type    Title                           Pub     Scope     Calc");
         System.out.println("--------------------------------------------------------------------------------");
         for (String[] mediaInfo : mediaLibrary) {
@@ -631,6 +750,8 @@ public class CMIS242ASG4LoganToms {
                 System.out.println("7. Display All Media of One Type");
                 System.out.println("8. Display Whole Library");
                 System.out.println("9. Exit");
+                System.out.println("10. Return Media");
+                System.out.println("11. Display Rental History");
 
                 System.out.print("Enter your choice: ");
                 int choice = scanner.nextInt();
@@ -673,10 +794,19 @@ public class CMIS242ASG4LoganToms {
                         // Display whole library
                         manager.displayAllMedia();
                         break;
+                    case 10:
+                        // Return media
+                        manager.returnMedia();
+                        break;
+                    case 11:
+                        // Display rental history
+                        manager.displayRentalHistory();
+                        break;
                     case 9:
                         // Exit
                         System.out.println("Exiting...");
                         manager.displayAllMedia();
+                        manager.close();
                         System.exit(0);
                     default:
                         System.out.println("Invalid choice. Please try again.");
@@ -0,0 +1,67 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * HistoryRollup class holding the per-item rent and return counts of one compacted month
+ */
+class HistoryRollup {
+    private final long bucketStart;
+    private final long bucketEnd;
+    private final int[] ids;
+    private final int[] rents;
+    private final int[] returns;
+
+    /*
+     * Constructs a HistoryRollup from per-item totals
+     * 
+     * @param bucketStart the start of the month that was compacted, inclusive
+     * @param bucketEnd the end of the month that was compacted, exclusive
+     * @param totals the rent and return counts of each numeric media ID
+     */
+    public HistoryRollup(long bucketStart, long bucketEnd, Map<Integer, int[]> totals) {
+        this.bucketStart = bucketStart;
+        this.bucketEnd = bucketEnd;
+        ids = new int[totals.size()];
+        rents = new int[totals.size()];
+        returns = new int[totals.size()];
+
+        int i = 0;
+        for (Map.Entry<Integer, int[]> entry : new TreeMap<>(totals).entrySet()) {
+            ids[i] = entry.getKey();
+            rents[i] = entry.getValue()[RentalEvent.Type.RENT.ordinal()];
+            returns[i] = entry.getValue()[RentalEvent.Type.RETURN.ordinal()];
+            i++;
+        }
+    }
+
+    // Getters for HistoryRollup attributes
+    public long getBucketStart() {
+        return bucketStart;
+    }
+
+    public long getBucketEnd() {
+        return bucketEnd;
+    }
+
+    // Adds this rollup's counts into the totals used to build a merged rollup
+    public void addTo(Map<Integer, int[]> totals) {
+        for (int i = 0; i < ids.length; i++) {
+            int[] counts = totals.computeIfAbsent(ids[i], key -> new int[2]);
+            counts[RentalEvent.Type.RENT.ordinal()] += rents[i];
+            counts[RentalEvent.Type.RETURN.ordinal()] += returns[i];
+        }
+    }
+
+    // Returns the number of times the media item was rented in this month
+    public int getRents(int mediaId) {
+        int index = Arrays.binarySearch(ids, mediaId);
+        return index < 0 ? 0 : rents[index];
+    }
+
+    // Returns the number of times the media item was returned in this month
+    public int getReturns(int mediaId) {
+        int index = Arrays.binarySearch(ids, mediaId);
+        return index < 0 ? 0 : returns[index];
+    }
+}
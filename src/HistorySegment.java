@@ -0,0 +1,240 @@
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/*
+ * HistorySegment class holding the sealed, read-only events of one time partition
+ * Events are sorted by time and stored as varints: the timestamp delta (with the event type in its lowest bit)
+ * followed by the zigzag-encoded media ID delta. The time and ID ranges and a bloom filter of the media IDs
+ * let queries skip the segment without decoding it.
+ */
+class HistorySegment {
+    private static final int BLOOM_HASHES = 3;
+
+    private final long partitionStart;
+    private final long minTime;
+    private final long maxTime;
+    private final int minId;
+    private final int maxId;
+    private final int count;
+    private final byte[] data;
+    private final long[] bloom;
+
+    private HistorySegment(long partitionStart, long minTime, long maxTime, int minId, int maxId, int count,
+            byte[] data, long[] bloom) {
+        this.partitionStart = partitionStart;
+        this.minTime = minTime;
+        this.maxTime = maxTime;
+        this.minId = minId;
+        this.maxId = maxId;
+        this.count = count;
+        this.data = data;
+        this.bloom = bloom;
+    }
+
+    /*
+     * Sorts and encodes the first count events of the given arrays into a segment
+     * 
+     * @param partitionStart the start of the time partition every event belongs to
+     * @param times the event timestamps
+     * @param ids the numeric media IDs
+     * @param types the event types as RentalEvent.Type ordinals
+     * @param count the number of events to encode
+     * @return the sealed segment
+     */
+    public static HistorySegment encode(long partitionStart, long[] times, int[] ids, byte[] types, int count) {
+        // Sort by time without boxing: every key is (offset in partition * count + index)
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (times[i] - partitionStart) * count + i;
+        }
+        Arrays.sort(order);
+
+        byte[] data = new byte[count * 4];
+        int length = 0;
+        long[] bloom = new long[Math.max(1, Integer.highestOneBit(Math.max(1, count * 10)) / 32)];
+        int minId = Integer.MAX_VALUE;
+        int maxId = Integer.MIN_VALUE;
+        long previousTime = partitionStart;
+        int previousId = 0;
+        for (long key : order) {
+            int i = (int) (key % count);
+            if (data.length - length < 20) {
+                data = Arrays.copyOf(data, data.length * 2 + 20);
+            }
+            length = writeVarint(data, length, ((times[i] - previousTime) << 1) | types[i]);
+            int idDelta = ids[i] - previousId;
+            length = writeVarint(data, length, ((idDelta << 1) ^ (idDelta >> 31)) & 0xffffffffL);
+            previousTime = times[i];
+            previousId = ids[i];
+
+            minId = Math.min(minId, ids[i]);
+            maxId = Math.max(maxId, ids[i]);
+            addToBloom(bloom, ids[i]);
+        }
+
+        long minTime = times[(int) (order[0] % count)];
+        return new HistorySegment(partitionStart, minTime, previousTime, minId, maxId, count,
+                Arrays.copyOf(data, length), bloom);
+    }
+
+    /*
+     * Encodes this segment's events together with late events that arrived after it was sealed
+     * 
+     * @param lateTimes the late event timestamps, all within this segment's partition
+     * @param lateIds the numeric media IDs of the late events
+     * @param lateTypes the late event types as RentalEvent.Type ordinals
+     * @param lateCount the number of late events
+     * @return a new segment holding every event of the partition
+     */
+    public HistorySegment merge(long[] lateTimes, int[] lateIds, byte[] lateTypes, int lateCount) {
+        int total = count + lateCount;
+        long[] times = Arrays.copyOf(lateTimes, total);
+        int[] ids = Arrays.copyOf(lateIds, total);
+        byte[] types = Arrays.copyOf(lateTypes, total);
+        int[] next = {lateCount};
+        decode((time, id, type) -> {
+            times[next[0]] = time;
+            ids[next[0]] = id;
+            types[next[0]] = (byte) type;
+            next[0]++;
+            return true;
+        });
+        return encode(partitionStart, times, ids, types, total);
+    }
+
+    // Getters for HistorySegment attributes
+    public long getPartitionStart() {
+        return partitionStart;
+    }
+
+    public long getMinTime() {
+        return minTime;
+    }
+
+    public long getMaxTime() {
+        return maxTime;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /*
+     * Checks the segment's ranges and bloom filter without decoding any events
+     * 
+     * @param mediaId the numeric media ID, or -1 for every media item
+     * @param from the start of the time range, inclusive
+     * @param to the end of the time range, exclusive
+     * @return false if the segment has no events that match, true if it might
+     */
+    public boolean mightContain(int mediaId, long from, long to) {
+        if (maxTime < from || minTime >= to) {
+            return false;
+        }
+        if (mediaId < 0) {
+            return true;
+        }
+        return mediaId >= minId && mediaId <= maxId && bloomContains(bloom, mediaId);
+    }
+
+    /*
+     * Decodes the segment and passes every matching event to the action in time order
+     * 
+     * @param mediaId the numeric media ID, or -1 for every media item
+     * @param from the start of the time range, inclusive
+     * @param to the end of the time range, exclusive
+     * @param action what to do with each matching event
+     */
+    public void scan(int mediaId, long from, long to, Consumer<RentalEvent> action) {
+        RentalEvent.Type[] types = RentalEvent.Type.values();
+        decode((time, id, type) -> {
+            if (time >= to) {
+                return false; // Events are sorted, so nothing later can match
+            }
+            if (time >= from && (mediaId < 0 || id == mediaId)) {
+                action.accept(new RentalEvent(time, RentalHistory.formatId(id), types[type]));
+            }
+            return true;
+        });
+    }
+
+    // Adds up the rents and returns of each media item into the totals used to build a rollup
+    public void rollUp(Map<Integer, int[]> totals) {
+        decode((time, id, type) -> {
+            totals.computeIfAbsent(id, key -> new int[2])[type]++;
+            return true;
+        });
+    }
+
+    // Receives each decoded event; returning false stops decoding
+    private interface EventVisitor {
+        boolean visit(long time, int id, int type);
+    }
+
+    private void decode(EventVisitor visitor) {
+        long time = partitionStart;
+        int id = 0;
+        int position = 0;
+        for (int i = 0; i < count; i++) {
+            long timeField = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[position++];
+                timeField |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            long idField = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[position++];
+                idField |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    break;
+                }
+            }
+            time += timeField >>> 1;
+            id += (int) (idField >>> 1) ^ -(int) (idField & 1);
+            if (!visitor.visit(time, id, (int) (timeField & 1))) {
+                return;
+            }
+        }
+    }
+
+    private static int writeVarint(byte[] data, int position, long value) {
+        while ((value & ~0x7fL) != 0) {
+            data[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        data[position++] = (byte) value;
+        return position;
+    }
+
+    private static void addToBloom(long[] bloom, int mediaId) {
+        int bits = bloom.length * 64;
+        int h1 = mix(mediaId);
+        int h2 = mix(h1) | 1;
+        for (int k = 0; k < BLOOM_HASHES; k++) {
+            int bit = ((h1 + k * h2) & 0x7fffffff) % bits;
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private static boolean bloomContains(long[] bloom, int mediaId) {
+        int bits = bloom.length * 64;
+        int h1 = mix(mediaId);
+        int h2 = mix(h1) | 1;
+        for (int k = 0; k < BLOOM_HASHES; k++) {
+            int bit = ((h1 + k * h2) & 0x7fffffff) % bits;
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int mix(int value) {
+        value *= 0x9e3779b1;
+        return value ^ (value >>> 16);
+    }
+}
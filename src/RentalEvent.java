@@ -0,0 +1,36 @@
+/*
+ * RentalEvent class representing one rent or return of a media item
+ */
+class RentalEvent {
+    public enum Type { RENT, RETURN }
+
+    private final long timestamp;
+    private final String mediaId;
+    private final Type type;
+
+    /*
+     * Constructs a RentalEvent with the given time, media ID and type
+     * 
+     * @param timestamp when the event happened, in milliseconds since the epoch
+     * @param mediaId the ID of the media item
+     * @param type whether the media item was rented or returned
+     */
+    public RentalEvent(long timestamp, String mediaId, Type type) {
+        this.timestamp = timestamp;
+        this.mediaId = mediaId;
+        this.type = type;
+    }
+
+    // Getters for RentalEvent attributes
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getMediaId() {
+        return mediaId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+}
@@ -0,0 +1,425 @@
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/*
+ * RentalHistory class recording every rent and return into append-only, time-partitioned segments
+ * Recording only queues the event and wakes a background writer thread, which fills, seals and compacts
+ * the segments, so rentMedia never waits on segment encoding, compaction or a query.
+ * Whole UTC months older than the compaction age are folded into one rollup per month, which keeps each
+ * item's counts but not the individual events.
+ * The history is kept in memory only and starts empty every time the program runs.
+ */
+class RentalHistory {
+    // Each segment covers one hour; events older than 90 days are compacted into monthly rollups
+    public static final long DEFAULT_PARTITION_MILLIS = 60L * 60 * 1000;
+    public static final long DEFAULT_COMPACT_AFTER_MILLIS = 90L * 24 * 60 * 60 * 1000;
+    // The writer is woken every time this many events are queued, and otherwise runs once a second
+    private static final int FLUSH_THRESHOLD = 1024;
+    private static final long FLUSH_INTERVAL_NANOS = 1_000_000_000L;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private final long partitionMillis;
+    private final long compactAfterMillis;
+    private final LongSupplier clock;
+
+    private final ConcurrentLinkedQueue<PendingEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Partitions still being written, guarded by writeLock
+    private final TreeMap<Long, OpenSegment> openSegments = new TreeMap<>();
+    // Sealed segments and rollups, replaced together so a query always sees each event exactly once
+    private volatile State state = new State(new TreeMap<>(), new TreeMap<>());
+    private final Thread writer;
+
+    // Constructor for RentalHistory objects using the default partition length, compaction age and system clock
+    public RentalHistory() {
+        this(DEFAULT_PARTITION_MILLIS, DEFAULT_COMPACT_AFTER_MILLIS, System::currentTimeMillis);
+    }
+
+    /*
+     * Constructs a RentalHistory with the given partition length, compaction age and clock
+     *
+     * @param partitionMillis the length of time covered by each segment, in milliseconds; must divide one day evenly
+     * @param compactAfterMillis how old a segment must be before it is compacted into a rollup, in milliseconds
+     * @param clock the source of the current time in milliseconds
+     */
+    public RentalHistory(long partitionMillis, long compactAfterMillis, LongSupplier clock) {
+        // Partitions must line up with day and month boundaries so compaction never splits one
+        if (partitionMillis <= 0 || DAY_MILLIS % partitionMillis != 0) {
+            throw new IllegalArgumentException("Partition length must divide one day evenly: " + partitionMillis);
+        }
+        this.partitionMillis = partitionMillis;
+        this.compactAfterMillis = compactAfterMillis;
+        this.clock = clock;
+
+        writer = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(FLUSH_INTERVAL_NANOS);
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    // Keep the writer alive, or nothing would drain the queue until the next query
+                    System.err.println("Rental history writer failed: " + e);
+                }
+            }
+        }, "rental-history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Records a rent or return that happened now
+    public void record(String mediaId, RentalEvent.Type type) {
+        record(mediaId, type, clock.getAsLong());
+    }
+
+    /*
+     * Records a rent or return without waiting on the writer or on queries
+     *
+     * @param mediaId the ID of the media item
+     * @param type whether the media item was rented or returned
+     * @param timestamp when the event happened, in milliseconds since the epoch
+     * @throws IllegalArgumentException if the media ID is not a non-negative number
+     */
+    public void record(String mediaId, RentalEvent.Type type, long timestamp) {
+        // Parse here so a bad ID fails in the caller instead of on the writer thread
+        int id = Integer.parseInt(mediaId);
+        if (id < 0) {
+            throw new IllegalArgumentException("Invalid media ID: " + mediaId);
+        }
+        pending.offer(new PendingEvent(timestamp, id, type));
+        if (pendingCount.incrementAndGet() % FLUSH_THRESHOLD == 0) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /*
+     * Passes every recorded event for the media item within the time range to the action, in time order
+     * Events are streamed one segment at a time; compacted history is not included.
+     *
+     * @param mediaId the ID of the media item, or null for every media item
+     * @param from the start of the time range, inclusive
+     * @param to the end of the time range, exclusive
+     * @param action what to do with each matching event
+     */
+    public void query(String mediaId, long from, long to, Consumer<RentalEvent> action) {
+        scan(mediaId == null ? -1 : Integer.parseInt(mediaId), from, to, action, snapshot());
+    }
+
+    // Counts how many times the media item was rented within the time range, including compacted history
+    public RentalCount countRentals(String mediaId, long from, long to) {
+        return countRentals(mediaId, from, to, event -> { });
+    }
+
+    /*
+     * Counts how many times the media item was rented within the time range, including compacted history,
+     * and passes each event that has not been compacted to the action in time order
+     * Compacted months only count when the range covers all of them. If the range cuts through a compacted
+     * month, that month is left out and the count is marked as not exact.
+     *
+     * @param mediaId the ID of the media item
+     * @param from the start of the time range, inclusive
+     * @param to the end of the time range, exclusive
+     * @param action what to do with each matching event
+     * @return the number of rentals, and whether it covers the whole range
+     */
+    public RentalCount countRentals(String mediaId, long from, long to, Consumer<RentalEvent> action) {
+        int id = Integer.parseInt(mediaId);
+        Snapshot snapshot = snapshot();
+        long[] total = new long[1];
+        scan(id, from, to, event -> {
+            if (event.getType() == RentalEvent.Type.RENT) {
+                total[0]++;
+            }
+            action.accept(event);
+        }, snapshot);
+
+        boolean exact = true;
+        for (HistoryRollup rollup : snapshot.state.rollups.values()) {
+            if (rollup.getBucketStart() >= from && rollup.getBucketEnd() <= to) {
+                total[0] += rollup.getRents(id);
+            } else if (rollup.getBucketStart() < to && rollup.getBucketEnd() > from) {
+                exact = false;
+            }
+        }
+        return new RentalCount(total[0], exact);
+    }
+
+    // Writes every queued event and stops the writer thread
+    public void close() {
+        writer.interrupt();
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    // Writes queued events into segments, seals finished partitions and compacts old segments
+    public void flush() {
+        writeLock.lock();
+        try {
+            flushPending();
+            sealOlderPartitions();
+            compact();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Returns the number of sealed segments and rollups, for reporting
+    public int getSegmentCount() {
+        return state.segments.size();
+    }
+
+    public int getRollupCount() {
+        return state.rollups.size();
+    }
+
+    // Turns a numeric media ID back into its 5 digit form; String.format is too slow for large queries
+    static String formatId(int mediaId) {
+        String digits = Integer.toString(mediaId);
+        return digits.length() >= 5 ? digits : "00000".substring(digits.length()) + digits;
+    }
+
+    // Helper method to take a consistent view of the sealed state and the partition still being written
+    private Snapshot snapshot() {
+        writeLock.lock();
+        try {
+            flushPending();
+            sealOlderPartitions();
+            OpenSegment open = openSegments.isEmpty() ? null : openSegments.lastEntry().getValue().snapshot();
+            return new Snapshot(state, open);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Helper method to stream matching events from a snapshot in time order
+    private void scan(int mediaId, long from, long to, Consumer<RentalEvent> action, Snapshot snapshot) {
+        if (from >= to) {
+            return;
+        }
+        // Start at the partition holding from; every later partition starts at or after it
+        Long first = snapshot.state.segments.floorKey(from);
+        for (HistorySegment segment : snapshot.state.segments.subMap(first == null ? from : first, true, to, false).values()) {
+            if (segment.mightContain(mediaId, from, to)) {
+                segment.scan(mediaId, from, to, action);
+            }
+        }
+        // The open partition is always newer than every sealed one
+        if (snapshot.open != null) {
+            snapshot.open.scan(mediaId, from, to, action);
+        }
+    }
+
+    // Helper method to move queued events into open segments; the caller holds writeLock
+    private void flushPending() {
+        PendingEvent event;
+        while ((event = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            long partition = event.time - Math.floorMod(event.time, partitionMillis);
+            openSegments.computeIfAbsent(partition, OpenSegment::new).append(event.time, event.id, event.type);
+        }
+    }
+
+    // Helper method to seal every open partition that has ended or is not the newest; the caller holds writeLock
+    private void sealOlderPartitions() {
+        long now = clock.getAsLong();
+        if (openSegments.isEmpty()
+                || (openSegments.size() == 1 && openSegments.firstKey() + partitionMillis > now)) {
+            return;
+        }
+        // Late events for a partition that was already sealed are merged into its segment, so each
+        // partition has exactly one segment and segments stay in time order
+        TreeMap<Long, HistorySegment> segments = new TreeMap<>(state.segments);
+        while (!openSegments.isEmpty()
+                && (openSegments.size() > 1 || openSegments.firstKey() + partitionMillis <= now)) {
+            OpenSegment open = openSegments.pollFirstEntry().getValue();
+            HistorySegment existing = segments.get(open.partitionStart);
+            segments.put(open.partitionStart, existing == null ? open.seal() : open.mergeInto(existing));
+        }
+        state = new State(segments, state.rollups);
+    }
+
+    // Helper method to fold whole months older than the compaction age into monthly rollups; the caller holds writeLock
+    private void compact() {
+        State current = state;
+        // Only months that ended before the cutoff are compacted, so a month is never split between
+        // a rollup and live segments
+        long cutoff = monthStart(clock.getAsLong() - compactAfterMillis, 0);
+        NavigableMap<Long, HistorySegment> old = current.segments.headMap(cutoff, false);
+        if (old.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Map<Integer, int[]>> totals = new HashMap<>();
+        for (HistorySegment segment : old.values()) {
+            long bucket = monthStart(segment.getPartitionStart(), 0);
+            Map<Integer, int[]> monthTotals = totals.get(bucket);
+            if (monthTotals == null) {
+                monthTotals = new HashMap<>();
+                totals.put(bucket, monthTotals);
+                HistoryRollup existing = current.rollups.get(bucket);
+                if (existing != null) {
+                    existing.addTo(monthTotals);
+                }
+            }
+            segment.rollUp(monthTotals);
+        }
+
+        TreeMap<Long, HistoryRollup> rollups = new TreeMap<>(current.rollups);
+        for (Map.Entry<Long, Map<Integer, int[]>> entry : totals.entrySet()) {
+            rollups.put(entry.getKey(), new HistoryRollup(entry.getKey(), monthStart(entry.getKey(), 1), entry.getValue()));
+        }
+        state = new State(new TreeMap<>(current.segments.tailMap(cutoff, true)), rollups);
+    }
+
+    // Returns the start of the UTC calendar month that is monthsAhead months after the one holding the given time
+    private static long monthStart(long time, int monthsAhead) {
+        return LocalDate.ofEpochDay(Math.floorDiv(time, DAY_MILLIS)).withDayOfMonth(1).plusMonths(monthsAhead)
+                .atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+
+    /*
+     * RentalCount class holding the result of countRentals
+     * The count is not exact when the range cuts through a compacted month, since only the month's total is
+     * kept; such months are left out, so the count is then a lower bound.
+     */
+    public static class RentalCount {
+        private final long rentals;
+        private final boolean exact;
+
+        RentalCount(long rentals, boolean exact) {
+            this.rentals = rentals;
+            this.exact = exact;
+        }
+
+        public long getRentals() {
+            return rentals;
+        }
+
+        public boolean isExact() {
+            return exact;
+        }
+    }
+
+    // PendingEvent class holding a recorded event until the writer moves it into a segment
+    private static class PendingEvent {
+        private final long time;
+        private final int id;
+        private final RentalEvent.Type type;
+
+        PendingEvent(long time, int id, RentalEvent.Type type) {
+            this.time = time;
+            this.id = id;
+            this.type = type;
+        }
+    }
+
+    /*
+     * State class holding the sealed segments and rollups, each keyed by start time
+     * A State is never changed once published; the writer builds a new one instead.
+     */
+    private static class State {
+        private final NavigableMap<Long, HistorySegment> segments;
+        private final NavigableMap<Long, HistoryRollup> rollups;
+
+        State(NavigableMap<Long, HistorySegment> segments, NavigableMap<Long, HistoryRollup> rollups) {
+            this.segments = segments;
+            this.rollups = rollups;
+        }
+    }
+
+    // Snapshot class pairing a State with a copy of the open partition taken at the same moment
+    private static class Snapshot {
+        private final State state;
+        private final OpenSegment open;
+
+        Snapshot(State state, OpenSegment open) {
+            this.state = state;
+            this.open = open;
+        }
+    }
+
+    /*
+     * OpenSegment class buffering the raw events of a partition that is still being written
+     * Arrays only grow by copying, so a snapshot can keep reading its prefix while new events are appended.
+     */
+    private static class OpenSegment {
+        private final long partitionStart;
+        private long[] times = new long[64];
+        private int[] ids = new int[64];
+        private byte[] types = new byte[64];
+        private int size;
+
+        OpenSegment(long partitionStart) {
+            this.partitionStart = partitionStart;
+        }
+
+        private OpenSegment(OpenSegment source) {
+            partitionStart = source.partitionStart;
+            times = source.times;
+            ids = source.ids;
+            types = source.types;
+            size = source.size;
+        }
+
+        void append(long time, int id, RentalEvent.Type type) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                ids = Arrays.copyOf(ids, size * 2);
+                types = Arrays.copyOf(types, size * 2);
+            }
+            times[size] = time;
+            ids[size] = id;
+            types[size] = (byte) type.ordinal();
+            size++;
+        }
+
+        OpenSegment snapshot() {
+            return new OpenSegment(this);
+        }
+
+        HistorySegment seal() {
+            return HistorySegment.encode(partitionStart, times, ids, types, size);
+        }
+
+        HistorySegment mergeInto(HistorySegment existing) {
+            return existing.merge(times, ids, types, size);
+        }
+
+        // Events arrive in recording order, so matches are sorted by time before they are passed on
+        void scan(int mediaId, long from, long to, Consumer<RentalEvent> action) {
+            long[] matches = new long[16];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (times[i] >= from && times[i] < to && (mediaId < 0 || ids[i] == mediaId)) {
+                    if (count == matches.length) {
+                        matches = Arrays.copyOf(matches, count * 2);
+                    }
+                    // Sort without boxing: every key is (offset in partition * size + index)
+                    matches[count++] = (times[i] - partitionStart) * size + i;
+                }
+            }
+            Arrays.sort(matches, 0, count);
+
+            RentalEvent.Type[] values = RentalEvent.Type.values();
+            for (int m = 0; m < count; m++) {
+                int i = (int) (matches[m] % size);
+                action.accept(new RentalEvent(times[i], formatId(ids[i]), values[types[i]]));
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ *
+ * @Description: Benchmark for RentalHistory. 64 terminals record rents and returns at the same time to
+ * measure ingest throughput and record call latency, then a year of history is loaded and
+ * timed per-item and time-range queries are run against it.
+ *
+ * Compile and run from the src directory:
+ *     javac *.java
+ *     java RentalHistoryBenchmark [events per terminal]
+ */
+public class RentalHistoryBenchmark {
+    private static final int THREADS = 64;
+    private static final int MEDIA_COUNT = 1000;
+    private static final long HOUR = 60L * 60 * 1000;
+    private static final long DAY = 24 * HOUR;
+
+    public static void main(String[] args) throws InterruptedException {
+        int eventsPerTerminal = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        measureIngest(eventsPerTerminal);
+        measureQueries();
+    }
+
+    // Records events from every terminal at once and reports the rate and record call latency
+    private static void measureIngest(int eventsPerTerminal) throws InterruptedException {
+        RentalHistory history = new RentalHistory();
+        // Latency histogram per terminal; bucket b counts calls that took less than 2^b nanoseconds
+        long[][] latencies = new long[THREADS][64];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> terminals = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            final int terminal = t;
+            Thread thread = new Thread(() -> {
+                Random random = new Random(terminal);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < eventsPerTerminal; i++) {
+                    String mediaId = RentalHistory.formatId(10000 + random.nextInt(MEDIA_COUNT));
+                    long begin = System.nanoTime();
+                    history.record(mediaId, i % 2 == 0 ? RentalEvent.Type.RENT : RentalEvent.Type.RETURN);
+                    latencies[terminal][64 - Long.numberOfLeadingZeros(System.nanoTime() - begin)]++;
+                }
+            });
+            terminals.add(thread);
+            thread.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : terminals) {
+            thread.join();
+        }
+        history.close();
+        double elapsed = (System.nanoTime() - begin) / 1e9;
+
+        long[] combined = new long[64];
+        for (long[] histogram : latencies) {
+            for (int b = 0; b < 64; b++) {
+                combined[b] += histogram[b];
+            }
+        }
+        long total = (long) THREADS * eventsPerTerminal;
+        System.out.printf("Ingest: %,d events from %d terminals in %.2f s (%,.0f per second)%n",
+                total, THREADS, elapsed, total / elapsed);
+        // The maximum includes garbage collection pauses and time the terminal's thread was not scheduled
+        System.out.printf("Record call latency: p50 < %s, p99 < %s, p99.9 < %s, max < %s%n",
+                percentile(combined, total, 0.50), percentile(combined, total, 0.99),
+                percentile(combined, total, 0.999), percentile(combined, total, 1.0));
+    }
+
+    // Returns the upper bound of the histogram bucket holding the given fraction of calls
+    private static String percentile(long[] histogram, long total, double fraction) {
+        long seen = 0;
+        for (int b = 0; b < 64; b++) {
+            seen += histogram[b];
+            if (seen >= Math.ceil(total * fraction)) {
+                return String.format("%.3f ms", (1L << b) / 1e6);
+            }
+        }
+        return "n/a";
+    }
+
+    // Loads a year of history (one event a minute on average) and times queries against it
+    private static void measureQueries() {
+        long end = System.currentTimeMillis();
+        long begin = end - 365 * DAY;
+        RentalHistory history = new RentalHistory(RentalHistory.DEFAULT_PARTITION_MILLIS,
+                RentalHistory.DEFAULT_COMPACT_AFTER_MILLIS, () -> end);
+
+        Random random = new Random(42);
+        long events = 0;
+        for (long time = begin; time < end; time += 1 + random.nextInt(2 * 60 * 1000)) {
+            String mediaId = RentalHistory.formatId(10000 + random.nextInt(MEDIA_COUNT));
+            history.record(mediaId, random.nextBoolean() ? RentalEvent.Type.RENT : RentalEvent.Type.RETURN, time);
+            events++;
+        }
+        history.flush();
+        System.out.printf("History: %,d events over 365 days, %,d segments, %,d rollups%n",
+                events, history.getSegmentCount(), history.getRollupCount());
+
+        // Warm up before timing so the numbers do not include JIT compilation
+        for (int i = 0; i < 20; i++) {
+            history.countRentals("10042", begin, end);
+        }
+
+        long start = System.nanoTime();
+        RentalHistory.RentalCount rentals = history.countRentals("10042", begin, end);
+        System.out.printf("Rentals of 10042 over the year: %,d%s in %.3f ms%n", rentals.getRentals(),
+                rentals.isExact() ? "" : " (lower bound)", (System.nanoTime() - start) / 1e6);
+
+        start = System.nanoTime();
+        rentals = history.countRentals("10042", end - 91 * DAY, end);
+        System.out.printf("Rentals of 10042 last quarter: %,d%s in %.3f ms%n", rentals.getRentals(),
+                rentals.isExact() ? "" : " (lower bound)", (System.nanoTime() - start) / 1e6);
+
+        long hourStart = end - 30 * DAY - (end % DAY) + 14 * HOUR;
+        long[] matches = new long[1];
+        start = System.nanoTime();
+        history.query(null, hourStart, hourStart + HOUR, event -> matches[0]++);
+        System.out.printf("Events between 14:00 and 15:00 UTC 30 days ago: %,d in %.3f ms%n",
+                matches[0], (System.nanoTime() - start) / 1e6);
+        history.close();
+    }
+}
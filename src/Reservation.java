@@ -0,0 +1,25 @@
+/*
+ * Reservation class representing one customer's place in a waitlist
+ * Once the item is handed to the customer, holdExpiresAt is set and the item is held for them until then
+ */
+class Reservation {
+    private final String customerId;
+    private volatile long holdExpiresAt;
+
+    public Reservation(String customerId) {
+        this.customerId = customerId;
+    }
+
+    // Getters and setters for Reservation attributes
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public long getHoldExpiresAt() {
+        return holdExpiresAt;
+    }
+
+    public void setHoldExpiresAt(long holdExpiresAt) {
+        this.holdExpiresAt = holdExpiresAt;
+    }
+}
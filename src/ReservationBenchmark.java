@@ -0,0 +1,117 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ *
+ * @Description: Contention benchmark for ReservationManager. 64 terminals rent and return a handful of
+ * hot media IDs while also renting their own quiet IDs, then reports throughput and how evenly the hot
+ * titles were shared between terminals.
+ *
+ * Compile and run from the src directory:
+ *     javac *.java
+ *     java ReservationBenchmark [seconds]
+ */
+public class ReservationBenchmark {
+    private static final int THREADS = 64;
+    private static final String[] HOT_IDS = {"83924", "18725", "37261", "98342"};
+    // Short holds so a terminal that is slow to pick up its hold passes the item on during the run
+    private static final long HOLD_MILLIS = 200;
+
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        ReservationManager reservations = new ReservationManager(HOLD_MILLIS, System::currentTimeMillis);
+
+        List<String[]> hotMedia = new ArrayList<>();
+        for (String id : HOT_IDS) {
+            hotMedia.add(new String[] {id, "0"});
+        }
+
+        long[] hotRentals = new long[THREADS];
+        long[] quietRentals = new long[THREADS];
+        long[] missedHolds = new long[THREADS];
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> terminals = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            final int terminal = t;
+            Thread thread = new Thread(() -> {
+                String customerId = "C" + terminal;
+                String[] hot = hotMedia.get(terminal % hotMedia.size());
+                String[] quiet = {String.format("%05d", 50000 + terminal), "0"};
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                while (running.get()) {
+                    // Traffic on an unrelated ID should not wait on the hot titles
+                    reservations.rent(quiet, customerId);
+                    reservations.returnMedia(quiet);
+                    quietRentals[terminal]++;
+
+                    ReservationManager.RentResult result = reservations.rent(hot, customerId).getResult();
+                    long lastAsked = System.currentTimeMillis();
+                    while (result == ReservationManager.RentResult.WAITLISTED
+                            || result == ReservationManager.RentResult.ALREADY_WAITLISTED) {
+                        if (!running.get()) {
+                            return;
+                        }
+                        // Wait for the hold to come to this terminal without taking the lock, then claim it.
+                        // Ask again once a hold could have expired, in case this terminal missed its turn.
+                        Reservation hold = reservations.getHold(hot[0]);
+                        boolean ours = hold != null && hold.getCustomerId().equals(customerId);
+                        if (!ours && System.currentTimeMillis() - lastAsked < HOLD_MILLIS) {
+                            Thread.yield();
+                            continue;
+                        }
+                        result = reservations.rent(hot, customerId).getResult();
+                        lastAsked = System.currentTimeMillis();
+                        if (result == ReservationManager.RentResult.WAITLISTED) { // The hold expired before it was claimed
+                            missedHolds[terminal]++;
+                        }
+                    }
+                    hotRentals[terminal]++;
+                    reservations.returnMedia(hot);
+                }
+            });
+            terminals.add(thread);
+            thread.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for (Thread thread : terminals) {
+            thread.join();
+        }
+        double elapsed = (System.nanoTime() - begin) / 1e9;
+
+        long hotTotal = 0;
+        long quietTotal = 0;
+        long missedTotal = 0;
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        double sumOfSquares = 0;
+        for (int t = 0; t < THREADS; t++) {
+            hotTotal += hotRentals[t];
+            quietTotal += quietRentals[t];
+            missedTotal += missedHolds[t];
+            min = Math.min(min, hotRentals[t]);
+            max = Math.max(max, hotRentals[t]);
+            sumOfSquares += (double) hotRentals[t] * hotRentals[t];
+        }
+        // Jain's fairness index: 1.0 when every terminal got the same number of hot rentals
+        double fairness = sumOfSquares == 0 ? 0 : (double) hotTotal * hotTotal / (THREADS * sumOfSquares);
+
+        System.out.printf("Terminals: %d, hot IDs: %d, duration: %.2f s%n", THREADS, HOT_IDS.length, elapsed);
+        System.out.printf("Hot rentals:   %,d (%,.0f per second)%n", hotTotal, hotTotal / elapsed);
+        System.out.printf("Quiet rentals: %,d (%,.0f per second)%n", quietTotal, quietTotal / elapsed);
+        System.out.printf("Hot rentals per terminal: min %,d, max %,d, fairness index %.3f%n", min, max, fairness);
+        System.out.printf("Holds that expired before they were claimed: %,d%n", missedTotal);
+    }
+}
@@ -0,0 +1,233 @@
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
+
+/*
+ * ReservationManager class to handle waitlists for media that is already rented
+ * Each media ID has its own FIFO queue; a return hands the item to the head of the queue as a hold.
+ * Changes to one media ID are guarded by one of a fixed set of lock stripes, so a busy title
+ * only blocks the few IDs that share its stripe instead of the whole library.
+ */
+class ReservationManager {
+    // Outcomes of a rent request
+    public enum RentResult { RENTED, CLAIMED, WAITLISTED, ALREADY_WAITLISTED, ALREADY_RENTED }
+    // Outcomes of a return
+    public enum ReturnResult { NOT_RENTED, AVAILABLE, HELD }
+
+    /*
+     * RentOutcome class reporting what happened to a rent request
+     * For WAITLISTED and ALREADY_WAITLISTED the position is the customer's place in line, counted from 1.
+     */
+    public static class RentOutcome {
+        private final RentResult result;
+        private final int position;
+
+        RentOutcome(RentResult result, int position) {
+            this.result = result;
+            this.position = position;
+        }
+
+        public RentResult getResult() {
+            return result;
+        }
+
+        public int getPosition() {
+            return position;
+        }
+    }
+
+    /*
+     * ReturnOutcome class reporting what happened to a return
+     * For HELD the hold is the reservation the item is now held for; otherwise it is null.
+     */
+    public static class ReturnOutcome {
+        private final ReturnResult result;
+        private final Reservation hold;
+
+        ReturnOutcome(ReturnResult result, Reservation hold) {
+            this.result = result;
+            this.hold = hold;
+        }
+
+        public ReturnResult getResult() {
+            return result;
+        }
+
+        public Reservation getHold() {
+            return hold;
+        }
+    }
+
+    // How long a returned item is held for the next customer in line (24 hours by default)
+    public static final long DEFAULT_HOLD_MILLIS = 24L * 60 * 60 * 1000;
+    private static final int STRIPE_COUNT = 64;
+
+    private final ConcurrentHashMap<String, ConcurrentLinkedQueue<Reservation>> waitlists = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Reservation> activeHolds = new ConcurrentHashMap<>();
+    // The customer who has each rented media item, when it was rented through this manager
+    private final ConcurrentHashMap<String, String> renters = new ConcurrentHashMap<>();
+    private final Object[] stripes = new Object[STRIPE_COUNT];
+    private final long holdMillis;
+    private final LongSupplier clock;
+
+    // Constructor for ReservationManager objects using the default hold length and the system clock
+    public ReservationManager() {
+        this(DEFAULT_HOLD_MILLIS, System::currentTimeMillis);
+    }
+
+    /*
+     * Constructs a ReservationManager with the given hold length and clock
+     * 
+     * @param holdMillis how long a returned item is held for the next customer, in milliseconds
+     * @param clock the source of the current time in milliseconds
+     */
+    public ReservationManager(long holdMillis, LongSupplier clock) {
+        this.holdMillis = holdMillis;
+        this.clock = clock;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /*
+     * Rents the media for the customer, claims the customer's hold, or adds the customer to the waitlist
+     * 
+     * @param mediaInfo the library entry of the media item
+     * @param customerId the customer asking for the media item
+     * @return what happened to the request, with the customer's place in line if they are waiting
+     */
+    public RentOutcome rent(String[] mediaInfo, String customerId) {
+        String mediaId = mediaInfo[0];
+        synchronized (stripeFor(mediaId)) {
+            long now = clock.getAsLong();
+            expireHold(mediaInfo, now);
+
+            if (mediaInfo[1].equals("0")) { // If the media is not rented
+                mediaInfo[1] = "1";
+                renters.put(mediaId, customerId);
+                return new RentOutcome(RentResult.RENTED, 0);
+            }
+
+            Reservation hold = activeHolds.get(mediaId);
+            if (hold != null && hold.getCustomerId().equals(customerId)) { // The customer is picking up their hold
+                activeHolds.remove(mediaId);
+                renters.put(mediaId, customerId);
+                return new RentOutcome(RentResult.CLAIMED, 0);
+            }
+            if (hold == null && customerId.equals(renters.get(mediaId))) { // The customer already has it
+                return new RentOutcome(RentResult.ALREADY_RENTED, 0);
+            }
+
+            ConcurrentLinkedQueue<Reservation> waitlist = waitlists.computeIfAbsent(mediaId, id -> new ConcurrentLinkedQueue<>());
+            int position = positionOf(waitlist, customerId);
+            if (position > 0) {
+                return new RentOutcome(RentResult.ALREADY_WAITLISTED, position);
+            }
+            waitlist.add(new Reservation(customerId));
+            return new RentOutcome(RentResult.WAITLISTED, waitlist.size());
+        }
+    }
+
+    /*
+     * Returns the media and hands it to the next customer in the waitlist
+     * 
+     * @param mediaInfo the library entry of the media item
+     * @return NOT_RENTED if the item was available or on hold, AVAILABLE if nobody was waiting,
+     *         or HELD with the reservation the item is now held for
+     */
+    public ReturnOutcome returnMedia(String[] mediaInfo) {
+        String mediaId = mediaInfo[0];
+        synchronized (stripeFor(mediaId)) {
+            long now = clock.getAsLong();
+            expireHold(mediaInfo, now);
+
+            // An item that is available or waiting on a hold is not out with a customer
+            if (mediaInfo[1].equals("0") || activeHolds.containsKey(mediaId)) {
+                return new ReturnOutcome(ReturnResult.NOT_RENTED, null);
+            }
+            renters.remove(mediaId);
+            Reservation hold = handOff(mediaInfo, now);
+            return new ReturnOutcome(hold == null ? ReturnResult.AVAILABLE : ReturnResult.HELD, hold);
+        }
+    }
+
+    /*
+     * Releases every hold that has expired without being claimed
+     * 
+     * @param mediaLibrary the library entries to check
+     * @return the number of holds that expired
+     */
+    public int expireHolds(List<String[]> mediaLibrary) {
+        int expired = 0;
+        long now = clock.getAsLong();
+        for (String[] mediaInfo : mediaLibrary) {
+            if (!activeHolds.containsKey(mediaInfo[0])) {
+                continue;
+            }
+            synchronized (stripeFor(mediaInfo[0])) {
+                if (expireHold(mediaInfo, now)) {
+                    expired++;
+                }
+            }
+        }
+        return expired;
+    }
+
+    // Drops the waitlist and any hold for a media item that left the library
+    public void clear(String mediaId) {
+        synchronized (stripeFor(mediaId)) {
+            waitlists.remove(mediaId);
+            activeHolds.remove(mediaId);
+            renters.remove(mediaId);
+        }
+    }
+
+    // Returns the hold currently waiting to be claimed for the media item, or null if there is none
+    public Reservation getHold(String mediaId) {
+        return activeHolds.get(mediaId);
+    }
+
+    // Helper method to pass an unclaimed hold on to the next customer once it has expired
+    private boolean expireHold(String[] mediaInfo, long now) {
+        Reservation hold = activeHolds.get(mediaInfo[0]);
+        if (hold == null || now < hold.getHoldExpiresAt()) {
+            return false;
+        }
+        activeHolds.remove(mediaInfo[0]);
+        handOff(mediaInfo, now);
+        return true;
+    }
+
+    // Helper method to hold the item for the head of the waitlist, or make it available if nobody is waiting
+    private Reservation handOff(String[] mediaInfo, long now) {
+        ConcurrentLinkedQueue<Reservation> waitlist = waitlists.get(mediaInfo[0]);
+        Reservation next = waitlist == null ? null : waitlist.poll();
+        if (waitlist != null && waitlist.isEmpty()) { // Don't keep a queue for every title that was ever busy
+            waitlists.remove(mediaInfo[0]);
+        }
+        if (next == null) {
+            mediaInfo[1] = "0"; // Change the status to available
+            return null;
+        }
+        next.setHoldExpiresAt(now + holdMillis);
+        activeHolds.put(mediaInfo[0], next);
+        return next;
+    }
+
+    // Returns the customer's place in the waitlist counted from 1, or 0 if they are not waiting
+    private int positionOf(ConcurrentLinkedQueue<Reservation> waitlist, String customerId) {
+        int position = 1;
+        for (Reservation reservation : waitlist) {
+            if (reservation.getCustomerId().equals(customerId)) {
+                return position;
+            }
+            position++;
+        }
+        return 0;
+    }
+
+    private Object stripeFor(String mediaId) {
+        return stripes[(mediaId.hashCode() & 0x7fffffff) % stripes.length];
+    }
+}